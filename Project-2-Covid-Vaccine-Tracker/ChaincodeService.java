@@ -0,0 +1,64 @@
+package CovidVaccineTracker;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.hyperledger.fabric.contract.ContractRouter;
+import org.hyperledger.fabric.shim.ChaincodeServer;
+import org.hyperledger.fabric.shim.ChaincodeServerProperties;
+import org.hyperledger.fabric.shim.NettyGrpcServer;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Runs the contract as an external chaincode service that the peers connect
+ * to. The chaincode image then decides how the JVM is started, so it can load
+ * the class-data-sharing archive written by the Dockerfile.
+ *
+ * The chaincode id is read from CORE_CHAINCODE_ID_NAME and the port from
+ * CHAINCODE_SERVER_PORT, which defaults to 9999. With --warmup the contract is
+ * scanned, a recipient is round-tripped through Genson and the server is
+ * started and stopped once, which is the run that records the class list.
+ */
+public final class ChaincodeService {
+	private static final String WARMUP = "--warmup";
+	private static final int DEFAULT_PORT = 9999;
+
+	private ChaincodeService() {
+	}
+
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		boolean warmup = args.length > 0 && WARMUP.equals(args[0]);
+
+		String port = System.getenv("CHAINCODE_SERVER_PORT");
+		ChaincodeServerProperties properties = new ChaincodeServerProperties();
+		properties.setPortChaincodeServer(port == null || port.isEmpty() ? DEFAULT_PORT : Integer.parseInt(port));
+
+		ContractRouter router = new ContractRouter(warmup ? Arrays.copyOfRange(args, 1, args.length) : args);
+		NettyGrpcServer grpcServer = new NettyGrpcServer(router, properties);
+		router.startRouterWithChaincodeServer(new ChaincodeServer() {
+			@Override
+			public void start() throws IOException, InterruptedException {
+				grpcServer.start();
+				if (warmup) {
+					grpcServer.stop();
+				} else {
+					grpcServer.blockUntilShutdown();
+				}
+			}
+
+			@Override
+			public void stop() {
+				grpcServer.stop();
+			}
+		});
+
+		if (warmup) {
+			Genson genson = new Genson();
+			VaccineTracker vaccinetracker = new VaccineTracker("benid123", "beneficiary1", "20", "male", "vacrefid1",
+					"covaxin", "1/1/2021", "first");
+			genson.deserialize(genson.serialize(vaccinetracker), VaccineTracker.class);
+			System.exit(0);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package CovidVaccineTracker;
+
+import java.util.List;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+/**
+ * Ordered index of recipients by age band and date of the last dose, used for
+ * eligibility queries such as booster targeting without scanning every
+ * recipient.
+ *
+ * Entries are stored under the composite key (ageBand~lastDose, band,
+ * lastDoseEpochDay, age, identity). Within a ten-year band entries sort by the
+ * last dose, so a query reads each band only up to its cutoff day.
+ */
+final class EligibilityIndex {
+	private static final String INDEX_NAME = "ageBand~lastDose";
+	private static final int BAND_WIDTH = 10;
+	private static final String EMPTY_VALUE = "\u0000";
+
+	private EligibilityIndex() {
+	}
+
+	static void add(final ChaincodeStub stub, final VaccineTracker vaccinetracker) {
+		String key = key(stub, vaccinetracker);
+		if (key != null) {
+			stub.putStringState(key, EMPTY_VALUE);
+		}
+	}
+
+	static void remove(final ChaincodeStub stub, final VaccineTracker vaccinetracker) {
+		String key = key(stub, vaccinetracker);
+		if (key != null) {
+			stub.delState(key);
+		}
+	}
+
+	/*
+	 * Collect up to pageSize identities aged minAge to maxAge whose last dose was
+	 * on or before lastDoseEpochDay, and return the bookmark of the next page or an
+	 * empty string when there are no more results
+	 */
+	static String query(final ChaincodeStub stub, final int minAge, final int maxAge, final long lastDoseEpochDay,
+			final int pageSize, final String bookmark, final List<String> identities) {
+		int band = minAge / BAND_WIDTH;
+		String bandBookmark = "";
+
+		if (!bookmark.isEmpty()) {
+			int separator = bookmark.indexOf(':');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Bookmark " + bookmark + " is invalid");
+			}
+			band = Math.max(band, Integer.parseInt(bookmark.substring(0, separator)));
+			bandBookmark = bookmark.substring(separator + 1);
+		}
+
+		while (band <= maxAge / BAND_WIDTH) {
+			if (identities.size() >= pageSize) {
+				return band + ":" + bandBookmark;
+			}
+
+			int fetchSize = pageSize - identities.size();
+			int fetched = 0;
+			boolean bandDone = false;
+
+			try (QueryResultsIteratorWithMetadata<KeyValue> entries = stub.getStateByPartialCompositeKeyWithPagination(
+					stub.createCompositeKey(INDEX_NAME, band(band)), fetchSize, bandBookmark)) {
+				for (KeyValue entry : entries) {
+					fetched++;
+					List<String> attributes = stub.splitCompositeKey(entry.getKey()).getAttributes();
+					if (Long.parseLong(attributes.get(1)) > lastDoseEpochDay) {
+						bandDone = true;
+						break;
+					}
+					int age = Integer.parseInt(attributes.get(2));
+					if (age >= minAge && age <= maxAge) {
+						identities.add(attributes.get(3));
+					}
+				}
+				bandBookmark = entries.getMetadata().getBookmark();
+			} catch (Exception ex) {
+				throw new ChaincodeException(ex);
+			}
+
+			if (bandDone || fetched < fetchSize) {
+				band++;
+				bandBookmark = "";
+			}
+		}
+		return "";
+	}
+
+	/*
+	 * Index key of the recipient, or null if the age or date cannot be indexed
+	 */
+	private static String key(final ChaincodeStub stub, final VaccineTracker vaccinetracker) {
+		int age = vaccinetracker.ageInYears();
+		long epochDay = vaccinetracker.doseEpochDay();
+		if (age < 0 || epochDay < 0) {
+			return null;
+		}
+		return stub.createCompositeKey(INDEX_NAME, band(age / BAND_WIDTH), String.format("%08d", epochDay),
+				String.format("%03d", age), vaccinetracker.getIdentity()).toString();
+	}
+
+	/*
+	 * Zero-padded so that composite keys sort by band
+	 */
+	private static String band(final int band) {
+		return String.format("%02d", band);
+	}
+}
@@ -0,0 +1,58 @@
+package CovidVaccineTracker;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import com.owlike.genson.annotation.JsonProperty;
+
+@DataType()
+public class RecipientPage {
+	@Property()
+	private final VaccineTracker[] recipients;
+
+	@Property()
+	private final String bookmark;
+
+	public VaccineTracker[] getRecipients() {
+		return recipients.clone();
+	}
+
+	public String getBookmark() {
+		return bookmark;
+	}
+
+	public RecipientPage(@JsonProperty("recipients") final VaccineTracker[] recipients,
+			@JsonProperty("bookmark") final String bookmark) {
+		this.recipients = recipients.clone();
+		this.bookmark = bookmark;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+
+		RecipientPage other = (RecipientPage) obj;
+
+		return Arrays.equals(recipients, other.recipients) && Objects.equals(getBookmark(), other.getBookmark());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(Arrays.hashCode(recipients), getBookmark());
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [recipients="
+				+ Arrays.toString(recipients) + ", bookmark=" + bookmark + "]";
+	}
+}
@@ -1,5 +1,9 @@
 package CovidVaccineTracker;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
 import java.util.Objects;
 //import java.util.Date;
 
@@ -10,6 +14,11 @@ import com.owlike.genson.annotation.JsonProperty;
 
 @DataType()
 public class VaccineTracker {
+	private static final int MAX_AGE = 150;
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("d/M/uuuu")
+			.withResolverStyle(ResolverStyle.STRICT);
+
 	@Property()
 	private final String name;
 
@@ -112,4 +121,51 @@ public class VaccineTracker {
 				+ date + ", gender=" + gender + ", identity=" + identity + ", name=" + name + ", vaccineDose="
 				+ vaccineDose + ", vaccineName=" + vaccineName + ", vaccineRefID=" + vaccineRefID + "]";
 	}
-}
\ No newline at end of file
+
+	/*
+	 * Age in whole years, or -1 if the age is not a number between 0 and 150
+	 */
+	public int ageInYears() {
+		return parseAge(age);
+	}
+
+	public static int parseAge(final String ageStr) {
+		if (ageStr == null) {
+			return -1;
+		}
+		try {
+			int years = Integer.parseInt(ageStr.trim());
+			return (years >= 0 && years <= MAX_AGE) ? years : -1;
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/*
+	 * Date of the last dose as days since 1/1/1970, or -1 if it is not a valid d/M/yyyy date
+	 */
+	public long doseEpochDay() {
+		if (date == null) {
+			return -1;
+		}
+		try {
+			long epochDay = LocalDate.parse(date.trim(), DATE_FORMAT).toEpochDay();
+			return epochDay >= 0 ? epochDay : -1;
+		} catch (DateTimeParseException ex) {
+			return -1;
+		}
+	}
+
+	/*
+	 * Number of doses taken, or -1 if the dose is neither first nor second
+	 */
+	public int doseNumber() {
+		if ("first".equalsIgnoreCase(vaccineDose)) {
+			return 1;
+		}
+		if ("second".equalsIgnoreCase(vaccineDose)) {
+			return 2;
+		}
+		return -1;
+	}
+}
@@ -8,6 +8,8 @@ import org.hyperledger.fabric.contract.annotation.Info;
 import org.hyperledger.fabric.contract.annotation.Transaction;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
 import java.util.*;
 import com.owlike.genson.Genson;
 
@@ -15,6 +17,12 @@ import com.owlike.genson.Genson;
 
 @Default
 public final class VaccineTrackerContract implements ContractInterface {
+	private static final int PURGE_BATCH_SIZE = 500;
+
+	private static final int MAX_PAGE_SIZE = 200;
+
+	private static final long SECONDS_PER_DAY = 86400L;
+
 	private final Genson genson = new Genson();
 
 	private enum VaccineTrackerErrors {
@@ -34,6 +42,7 @@ public final class VaccineTrackerContract implements ContractInterface {
 				"covaxin", "1/1/2021", "first");
 		String BeneficiaryState = genson.serialize(vaccinetracker);
 		stub.putStringState("benid123", BeneficiaryState);
+		EligibilityIndex.add(stub, vaccinetracker);
 	}
 
 	/**
@@ -53,7 +62,12 @@ public final class VaccineTrackerContract implements ContractInterface {
 	 *
 	 *                    This function does the following checks as well: Recipient
 	 *                    should not have taken second dose of the vaccine Recipient
-	 *                    should not have taken both the doses of the vaccine
+	 *                    should not have taken both the doses of the vaccine Age
+	 *                    should be a number of years and date should be in d/M/yyyy
+	 *                    format
+	 *
+	 *                    A retry carrying the same transient requestId as an earlier
+	 *                    committed call returns the original result.
 	 *
 	 */
 
@@ -63,6 +77,14 @@ public final class VaccineTrackerContract implements ContractInterface {
 			final String date, final String vaccineDose) {
 
 		ChaincodeStub stub = ctx.getStub();
+
+		String requestId = ClientRequestIndex.requestId(stub);
+		if (requestId != null) {
+			VaccineTracker previousResult = previousResult(ctx, "addNewRecipientFirstDose", requestId, identity);
+			if (previousResult != null) {
+				return previousResult;
+			}
+		}
 		
 		ArrayList<String> ApprovedVaccines = new ArrayList<String>(
 	            Arrays.asList("covaxin", "covishield", "covilo", "coronovac", "sputnik"));
@@ -85,6 +107,22 @@ public final class VaccineTrackerContract implements ContractInterface {
 			System.out.println(errorMessage);
 			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
 		}
+
+		VaccineTracker vaccinetracker = new VaccineTracker(identity, name, age, gender, vaccineRefID, vaccineName, date,
+				vaccineDose);
+
+		if (vaccinetracker.ageInYears() < 0) {
+			String errorMessage = String.format("Given age %s is invalid. Please enter the age in years", age);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
+		if (vaccinetracker.doseEpochDay() < 0) {
+			String errorMessage = String.format("Given date %s is invalid. Please enter the date in d/M/yyyy format",
+					date);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
 		
 		String BeneficiaryState = stub.getStringState(identity);
 
@@ -94,7 +132,7 @@ public final class VaccineTrackerContract implements ContractInterface {
 			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.Beneficiary_ALREADY_EXISTS.toString());
 		}
 
-		if (!vaccineDose.toLowerCase().equalsIgnoreCase("first")) {
+		if (vaccinetracker.doseNumber() != 1) {
 			String errorMessage = String.format(
 					"First dose details for the Beneficiary with the identity %s is not available. Please add first dose details.",
 					identity);
@@ -102,10 +140,12 @@ public final class VaccineTrackerContract implements ContractInterface {
 			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.Beneficiary_NOT_FOUND.toString());
 		}
 
-		VaccineTracker vaccinetracker = new VaccineTracker(identity, name, age, gender, vaccineRefID, vaccineName, date,
-				vaccineDose);
 		BeneficiaryState = genson.serialize(vaccinetracker);
 		stub.putStringState(identity, BeneficiaryState);
+		EligibilityIndex.add(stub, vaccinetracker);
+		if (requestId != null) {
+			ClientRequestIndex.record(ctx, "addNewRecipientFirstDose", identity, requestId, BeneficiaryState);
+		}
 		return vaccinetracker;
 	}
 
@@ -153,13 +193,25 @@ public final class VaccineTrackerContract implements ContractInterface {
 	 *
 	 *                 This function does the following checks as well: Recipient
 	 *                 should be given the first dose of the same vaccine Recipient
-	 *                 should not be fully vaccinated already
+	 *                 should not be fully vaccinated already Date should be in
+	 *                 d/M/yyyy format
+	 *
+	 *                 A retry carrying the same transient requestId as an earlier
+	 *                 committed call returns the original result.
 	 *
 	 */
 	@Transaction()
 	public VaccineTracker updateRecipientSecondDose(final Context ctx, final String identity, final String date) {
 		ChaincodeStub stub = ctx.getStub();
 
+		String requestId = ClientRequestIndex.requestId(stub);
+		if (requestId != null) {
+			VaccineTracker previousResult = previousResult(ctx, "updateRecipientSecondDose", requestId, identity);
+			if (previousResult != null) {
+				return previousResult;
+			}
+		}
+
 		String BeneficiaryState = stub.getStringState(identity);
 
 		if (BeneficiaryState.isEmpty()) {
@@ -170,8 +222,7 @@ public final class VaccineTrackerContract implements ContractInterface {
 
 		VaccineTracker vaccinetracker = genson.deserialize(BeneficiaryState, VaccineTracker.class);
 
-		String doseNumber = vaccinetracker.getVaccineDose().toString();
-		if (doseNumber.toLowerCase().equalsIgnoreCase("second")) {
+		if (vaccinetracker.doseNumber() == 2) {
 			String errorMessage = String.format("Beneficiary with identity proof %s is already fully vaccinated",
 					identity);
 			System.out.println(errorMessage);
@@ -182,8 +233,200 @@ public final class VaccineTrackerContract implements ContractInterface {
 				vaccinetracker.getAge(), vaccinetracker.getGender(), vaccinetracker.getVaccineRefID(),
 				vaccinetracker.getVaccineName(), date, "second");
 
+		if (updateVaccineTracker.doseEpochDay() < 0) {
+			String errorMessage = String.format("Given date %s is invalid. Please enter the date in d/M/yyyy format",
+					date);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
 		String updateBeneficiaryState = genson.serialize(updateVaccineTracker);
 		stub.putStringState(identity, updateBeneficiaryState);
+		EligibilityIndex.remove(stub, vaccinetracker);
+		EligibilityIndex.add(stub, updateVaccineTracker);
+		if (requestId != null) {
+			ClientRequestIndex.record(ctx, "updateRecipientSecondDose", identity, requestId,
+					updateBeneficiaryState);
+		}
 		return updateVaccineTracker;
 	}
+
+	/**
+	 *
+	 * 4. Purge expired client request ids:
+	 *
+	 * This function removes client request ids that are too old to be replayed.
+	 * It deletes at most 500 entries per call and returns how many were deleted.
+	 *
+	 * @param ctx the transaction context
+	 * @return the number of purged request ids
+	 *
+	 */
+	@Transaction()
+	public int purgeExpiredRequestIds(final Context ctx) {
+		return ClientRequestIndex.purgeExpired(ctx.getStub(), PURGE_BATCH_SIZE);
+	}
+
+	/**
+	 *
+	 * 5. Query recipients by age and last dose:
+	 *
+	 * This function lists recipients in an age range whose last dose was given more
+	 * than the given number of days ago, for example everyone aged 60 and above
+	 * whose last dose was over 180 days ago for booster targeting.
+	 *
+	 * Input parameters:
+	 *
+	 * @param minAge               the minimum age in years
+	 * @param maxAge               the maximum age in years
+	 * @param daysSinceLastDose the number of days the last dose should be older
+	 *                          than
+	 * @param pageSize          the maximum number of recipients to return
+	 * @param bookmark          the bookmark of the previous page, empty for the
+	 *                          first page
+	 *
+	 *                          This function returns a page of recipients with the
+	 *                          bookmark of the next page, which is empty after the
+	 *                          last page. It reads the age band and last dose index
+	 *                          with the pagination API, so it can only be
+	 *                          evaluated, not submitted. Recipients added before
+	 *                          the index existed are included once
+	 *                          reindexRecipients has been run.
+	 *
+	 */
+	@Transaction(intent = Transaction.TYPE.EVALUATE)
+	public RecipientPage queryRecipientsByAgeAndLastDose(final Context ctx, final String minAge, final String maxAge,
+			final String daysSinceLastDose, final String pageSize, final String bookmark) {
+		ChaincodeStub stub = ctx.getStub();
+
+		int minAgeYears = VaccineTracker.parseAge(minAge);
+		int maxAgeYears = VaccineTracker.parseAge(maxAge);
+		if (minAgeYears < 0 || maxAgeYears < minAgeYears) {
+			String errorMessage = String.format("Age range %s to %s is invalid", minAge, maxAge);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
+		int days;
+		int pageLimit;
+		try {
+			days = Integer.parseInt(daysSinceLastDose.trim());
+			pageLimit = Integer.parseInt(pageSize.trim());
+		} catch (NumberFormatException ex) {
+			days = -1;
+			pageLimit = -1;
+		}
+		if (days < 0 || pageLimit < 1 || pageLimit > MAX_PAGE_SIZE) {
+			String errorMessage = String.format(
+					"Days since last dose %s should be 0 or more and page size %s should be between 1 and %d",
+					daysSinceLastDose, pageSize, MAX_PAGE_SIZE);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
+		long today = stub.getTxTimestamp().getEpochSecond() / SECONDS_PER_DAY;
+		List<String> identities = new ArrayList<String>();
+		String nextBookmark;
+		try {
+			nextBookmark = EligibilityIndex.query(stub, minAgeYears, maxAgeYears, today - days - 1, pageLimit,
+					bookmark, identities);
+		} catch (IllegalArgumentException ex) {
+			String errorMessage = String.format("Bookmark %s is invalid", bookmark);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
+		List<VaccineTracker> recipients = new ArrayList<VaccineTracker>();
+		for (String identity : identities) {
+			String BeneficiaryState = stub.getStringState(identity);
+			if (BeneficiaryState.isEmpty()) {
+				System.out.println(String.format("Skipping stale index entry for the identity %s", identity));
+				continue;
+			}
+			recipients.add(genson.deserialize(BeneficiaryState, VaccineTracker.class));
+		}
+		return new RecipientPage(recipients.toArray(new VaccineTracker[0]), nextBookmark);
+	}
+
+	/**
+	 *
+	 * 6. Reindex existing recipients:
+	 *
+	 * This function adds recipients stored before the age band and last dose index
+	 * existed to the index, one page at a time. Call it with an empty bookmark,
+	 * then with the returned bookmark until it returns an empty one.
+	 *
+	 * Input parameters:
+	 *
+	 * @param pageSize the maximum number of recipients to read in this call
+	 * @param bookmark the bookmark returned by the previous call, empty for the
+	 *                 first call
+	 *
+	 *                 This function returns the bookmark of the next page, which is
+	 *                 empty after the last page. Recipients whose age or date
+	 *                 cannot be parsed are skipped.
+	 *
+	 */
+	@Transaction(intent = Transaction.TYPE.SUBMIT)
+	public String reindexRecipients(final Context ctx, final String pageSize, final String bookmark) {
+		ChaincodeStub stub = ctx.getStub();
+
+		int pageLimit;
+		try {
+			pageLimit = Integer.parseInt(pageSize.trim());
+		} catch (NumberFormatException ex) {
+			pageLimit = -1;
+		}
+		if (pageLimit < 1 || pageLimit > MAX_PAGE_SIZE) {
+			String errorMessage = String.format("Page size %s should be between 1 and %d", pageSize, MAX_PAGE_SIZE);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
+		int scanned = 0;
+		String lastKey = "";
+		try (QueryResultsIterator<KeyValue> states = stub.getStateByRange(bookmark, "")) {
+			for (KeyValue state : states) {
+				if (state.getKey().equals(bookmark)) {
+					continue;
+				}
+				if (scanned == pageLimit) {
+					return lastKey;
+				}
+				scanned++;
+				lastKey = state.getKey();
+
+				VaccineTracker vaccinetracker;
+				try {
+					vaccinetracker = genson.deserialize(state.getStringValue(), VaccineTracker.class);
+				} catch (RuntimeException ex) {
+					System.out.println(String.format("Skipping unreadable recipient %s", state.getKey()));
+					continue;
+				}
+				if (vaccinetracker != null && state.getKey().equals(vaccinetracker.getIdentity())) {
+					EligibilityIndex.add(stub, vaccinetracker);
+				}
+			}
+		} catch (Exception ex) {
+			throw new ChaincodeException(ex);
+		}
+		return "";
+	}
+
+	/*
+	 * Result of an earlier call with the same client request id, or null if there was none
+	 */
+	private VaccineTracker previousResult(final Context ctx, final String function, final String requestId,
+			final String identity) {
+		String previousState;
+		try {
+			previousState = ClientRequestIndex.lookup(ctx, function, identity, requestId);
+		} catch (IllegalArgumentException ex) {
+			String errorMessage = ex.getMessage();
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, VaccineTrackerErrors.INVALID_INPUT.toString());
+		}
+
+		return (previousState == null) ? null : genson.deserialize(previousState, VaccineTracker.class);
+	}
 }
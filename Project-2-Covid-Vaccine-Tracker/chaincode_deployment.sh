@@ -7,6 +7,15 @@ echo "---------------------------------------------------------------"
 export FABRIC_HOME=$HOME/fabric-samples/chaincode
 export CHAINCODE_NAME=CovidVaccineTracker
 export CHAINCODE_FOLDER=$HOME/Eclipse
+## CHAINCODE_MODE=service runs the chaincode from the image built by the Dockerfile, which
+## starts the JVM with the class-data-sharing archive. The peer's Java builder starts the JVM
+## itself and takes no JVM options, so the default java mode runs without the archive.
+## Service mode needs external_builder mounted in both peers at EXTERNAL_BUILDER_PATH and
+## listed under chaincode.externalBuilders in their core.yaml; the Fabric 2.2 test network
+## has no external builder configured out of the box.
+export CHAINCODE_MODE=${CHAINCODE_MODE:-java}
+export SERVICE_NAME=covidvaccinetracker-service
+export EXTERNAL_BUILDER_PATH=/opt/hyperledger/chaincode_service_builder
 export CHANNEL_NAME=cvtchannel
 if [[ -d "$FABRIC_HOME" ]] && [[ -d "$CHAINCODE_FOLDER" ]]; then
   ### Take action if $FABRIC_HOME and $CHAINCODE_FOLDER doesn't exists ###
@@ -50,6 +59,7 @@ cd $HOME/fabric-samples/test-network
 echo "---------------------------------------------------------------"
 echo "- Stop the previously running test network"
 echo "---------------------------------------------------------------"
+sudo docker rm -f $SERVICE_NAME > /dev/null 2>&1
 sudo ./network.sh down
 echo "---------------------------------------------------------------"
 echo "- Remove the unused docker images"
@@ -76,7 +86,23 @@ ls
 echo "---------------------------------------------------------------"
 echo "- Packaging chaincode"
 echo "---------------------------------------------------------------"
-peer lifecycle chaincode package $CHAINCODE_NAME.tar.gz --path ../chaincode/$CHAINCODE_NAME/build/install/$CHAINCODE_NAME --lang java --label $CHAINCODE_NAME-1
+if [[ "$CHAINCODE_MODE" == "service" ]]; then
+  for PEER in peer0.org1.example.com peer0.org2.example.com; do
+    if ! docker exec $PEER test -x $EXTERNAL_BUILDER_PATH/bin/detect; then
+      echo "Error: $PEER has no external builder at $EXTERNAL_BUILDER_PATH. Can not continue in service mode."
+      exit 1
+    fi
+  done
+  (cd "$CHAINCODE_FOLDER"/$CHAINCODE_NAME && ./gradlew chaincodeServiceImage)
+  docker build -t $SERVICE_NAME "$CHAINCODE_FOLDER"/$CHAINCODE_NAME/build/chaincode-service
+  rm -rf service-package && mkdir service-package
+  echo "{\"address\":\"$SERVICE_NAME:9999\",\"dial_timeout\":\"10s\",\"tls_required\":false}" > service-package/connection.json
+  echo "{\"type\":\"external\",\"label\":\"$CHAINCODE_NAME-1\"}" > service-package/metadata.json
+  tar -czf service-package/code.tar.gz -C service-package connection.json
+  tar -czf $CHAINCODE_NAME.tar.gz -C service-package metadata.json code.tar.gz
+else
+  peer lifecycle chaincode package $CHAINCODE_NAME.tar.gz --path ../chaincode/$CHAINCODE_NAME/build/install/$CHAINCODE_NAME --lang java --label $CHAINCODE_NAME-1
+fi
 ls
 echo "=================================================================================================="
 
@@ -115,6 +141,13 @@ peer lifecycle chaincode queryinstalled --peerAddresses localhost:9051 --tlsRoot
 export org2_pkgid=$(echo `peer lifecycle chaincode queryinstalled --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE| tail -1 | awk -F' ' '{print $3}' | sed -e s/,//`)
 echo $org2_pkgid
 echo "---------------------------------------------------------------"
+if [[ "$CHAINCODE_MODE" == "service" ]]; then
+  echo "- Starting the chaincode service for package $org1_pkgid"
+  echo "---------------------------------------------------------------"
+  PEER_NETWORK=$(docker inspect peer0.org1.example.com --format '{{range $name, $config := .NetworkSettings.Networks}}{{$name}}{{end}}')
+  docker run -d --name $SERVICE_NAME --network $PEER_NETWORK -e CORE_CHAINCODE_ID_NAME=$org1_pkgid $SERVICE_NAME
+  echo "---------------------------------------------------------------"
+fi
 #4. Downloading the installed chaincode from the Org1
 echo "#4. Downloading the installed chaincode from the Org1"
 echo "---------------------------------------------------------------"
@@ -237,5 +270,29 @@ echo "## Update the second dose details for an invalid identity"
 echo "---------------------------------------------------------------"
 peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 -c '{"Args":["updateRecipientSecondDose", "benid130","1/11/2022"]}'
 echo "---------------------------------------------------------------"
+sleep 2
+## Add a new recepient with a client request id
+echo "## Add a new recepient with a client request id"
+echo "---------------------------------------------------------------"
+peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 --transient "{\"requestId\":\"$(echo -n req-1 | base64)\"}" -c '{"Args":["addNewRecipientFirstDose", "benid127","beneficiary6", "30","female","vacrefid1","covaxin","1/1/2022","first"]}'
+echo "---------------------------------------------------------------"
+sleep 2
+## Retry the same request which returns the original result
+echo "## Retry the same request which returns the original result"
+echo "---------------------------------------------------------------"
+peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 --transient "{\"requestId\":\"$(echo -n req-1 | base64)\"}" -c '{"Args":["addNewRecipientFirstDose", "benid127","beneficiary6", "30","female","vacrefid1","covaxin","1/1/2022","first"]}'
+echo "---------------------------------------------------------------"
+sleep 2
+## Index recipients added before the age band and last dose index existed
+echo "## Index recipients added before the age band and last dose index existed"
+echo "---------------------------------------------------------------"
+peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 -c '{"Args":["reindexRecipients", "200",""]}'
+echo "---------------------------------------------------------------"
+sleep 2
+## Query recipients aged 60 and above whose last dose was over 180 days ago
+echo "## Query recipients aged 60 and above whose last dose was over 180 days ago"
+echo "---------------------------------------------------------------"
+peer chaincode query -C $CHANNEL_NAME -n $CHAINCODE_NAME -c '{"Args":["queryRecipientsByAgeAndLastDose", "60","150","180","50",""]}'
+echo "---------------------------------------------------------------"
 echo "End of chaincode program executions"
 echo "=================================================================================================="
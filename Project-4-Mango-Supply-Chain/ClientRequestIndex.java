@@ -0,0 +1,135 @@
+package MangoSupplyChain;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+/**
+ * Expiring index of client request ids, used to answer gateway retries with
+ * the result of the original transaction instead of an already-exists error.
+ *
+ * The request id is passed in the transient map under "requestId". Entries
+ * are stored under the composite key (clientRequest, day, client, requestId),
+ * where client is a hash of the submitter's identity, so ids only need to be
+ * unique per client. The value holds the transaction function, the identity
+ * or product ID it acted on, and the serialized result, so reusing an id for a
+ * different function or record is rejected rather than replayed. Entries stay
+ * valid for the day they were written and the following day. Because the day
+ * comes first in the key, expired entries sort first and can be purged
+ * without touching live ones.
+ */
+final class ClientRequestIndex {
+	static final String TRANSIENT_KEY = "requestId";
+
+	private static final String INDEX_NAME = "clientRequest";
+	private static final long SECONDS_PER_DAY = 86400L;
+	private static final String SEPARATOR = "\u0000";
+
+	private ClientRequestIndex() {
+	}
+
+	/*
+	 * Client request id of the current transaction, or null if none was given
+	 */
+	static String requestId(final ChaincodeStub stub) {
+		Map<String, byte[]> transientData = stub.getTransient();
+		if (transientData == null || !transientData.containsKey(TRANSIENT_KEY)) {
+			return null;
+		}
+
+		String requestId = new String(transientData.get(TRANSIENT_KEY), StandardCharsets.UTF_8);
+		return requestId.isEmpty() ? null : requestId;
+	}
+
+	/*
+	 * Serialized result recorded by this client for the request id, or null if it
+	 * is unknown or expired. Throws IllegalArgumentException if the id was used
+	 * for another function or record.
+	 */
+	static String lookup(final Context ctx, final String function, final String subject, final String requestId) {
+		ChaincodeStub stub = ctx.getStub();
+		long today = currentDay(stub);
+		for (long day = today; day >= today - 1; day--) {
+			String entry = stub.getStringState(key(ctx, day, requestId));
+			if (entry.isEmpty()) {
+				continue;
+			}
+
+			String[] parts = entry.split(SEPARATOR, 3);
+			if (parts.length != 3 || !parts[0].equals(function) || !parts[1].equals(subject)) {
+				throw new IllegalArgumentException(String.format(
+						"Request ID %s was already used for %s on %s", requestId, parts[0],
+						parts.length > 1 ? parts[1] : ""));
+			}
+			return parts[2];
+		}
+		return null;
+	}
+
+	static void record(final Context ctx, final String function, final String subject, final String requestId,
+			final String result) {
+		ChaincodeStub stub = ctx.getStub();
+		stub.putStringState(key(ctx, currentDay(stub), requestId),
+				function + SEPARATOR + subject + SEPARATOR + result);
+	}
+
+	/*
+	 * Delete up to limit expired entries and return how many were deleted
+	 */
+	static int purgeExpired(final ChaincodeStub stub, final int limit) {
+		String oldestLiveDay = day(currentDay(stub) - 1);
+		int purged = 0;
+
+		try (QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(INDEX_NAME)) {
+			for (KeyValue entry : entries) {
+				String day = stub.splitCompositeKey(entry.getKey()).getAttributes().get(0);
+				if (purged >= limit || day.compareTo(oldestLiveDay) >= 0) {
+					break;
+				}
+				stub.delState(entry.getKey());
+				purged++;
+			}
+		} catch (Exception ex) {
+			throw new ChaincodeException(ex);
+		}
+		return purged;
+	}
+
+	private static String key(final Context ctx, final long day, final String requestId) {
+		return ctx.getStub().createCompositeKey(INDEX_NAME, day(day), client(ctx), requestId).toString();
+	}
+
+	/*
+	 * Hex SHA-256 of the submitter's identity, to keep the key short
+	 */
+	private static String client(final Context ctx) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256")
+					.digest(ctx.getClientIdentity().getId().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new ChaincodeException(ex);
+		}
+	}
+
+	private static long currentDay(final ChaincodeStub stub) {
+		return stub.getTxTimestamp().getEpochSecond() / SECONDS_PER_DAY;
+	}
+
+	/*
+	 * Zero-padded so that composite keys sort by day
+	 */
+	private static String day(final long day) {
+		return String.format("%08d", day);
+	}
+}
@@ -15,6 +15,14 @@ import java.text.ParseException;
 
 @Default
 public final class MangoSupplyChainContract implements ContractInterface {
+	private static final int PURGE_BATCH_SIZE = 500;
+
+	private static final int MAX_TELEMETRY_BATCH = 1000;
+
+	private static final String TELEMETRY_CHUNK = "telemetry";
+
+	private static final String TELEMETRY_HEAD = "telemetryHead";
+
 	private final Genson genson = new Genson();
 
 	private enum MSCErrors {
@@ -55,6 +63,9 @@ public final class MangoSupplyChainContract implements ContractInterface {
 	 *         This function does the following check as well:
 	 *
 	 *         Same asset with the same product ID does not exist already
+	 *
+	 *         A retry carrying the same transient requestId as an earlier
+	 *         committed call returns the original result.
 	 */
 
 	@Transaction()
@@ -62,6 +73,15 @@ public final class MangoSupplyChainContract implements ContractInterface {
 			final String producerName, final String producerAddress, final String harvestDate) {
 
 		ChaincodeStub stub = ctx.getStub();
+
+		String requestId = ClientRequestIndex.requestId(stub);
+		if (requestId != null) {
+			String previousResult = previousResult(ctx, "addNewAsset", requestId, productId);
+			if (previousResult != null) {
+				return genson.deserialize(previousResult, MangoSupplyChain.class);
+			}
+		}
+
 		String AssetState = stub.getStringState(productId);
 
 		if (!AssetState.isEmpty()) {
@@ -88,6 +108,9 @@ public final class MangoSupplyChainContract implements ContractInterface {
 
 		AssetState = genson.serialize(mangosupplychain);
 		stub.putStringState(productId, AssetState);
+		if (requestId != null) {
+			ClientRequestIndex.record(ctx, "addNewAsset", productId, requestId, AssetState);
+		}
 		return mangosupplychain;
 	}
 
@@ -271,4 +294,324 @@ public final class MangoSupplyChainContract implements ContractInterface {
 		MangoSupplyChain mangosupplychain = genson.deserialize(AssetState, MangoSupplyChain.class);
 		return mangosupplychain;
 	}
+	/**
+	 *
+	 * 5. Generate a provenance attestation for consumers:
+	 *
+	 * This function returns a summary of the asset with a record hash and a Merkle
+	 * proof for every stage. The publishing org signs it off-chain and serves it
+	 * from a static cache, and consumer apps check it offline with
+	 * ProvenanceVerifier instead of querying the peers.
+	 *
+	 * Input parameters:
+	 *
+	 * @param ctx       the transaction context
+	 * @param productId product ID of the mango
+	 * @return the unsigned provenance attestation
+	 *
+	 *         No signing key is held by the peers. The publisher evaluates this
+	 *         function on peers of more than one org, checks that the record hash
+	 *         and Merkle root agree, and signs the result with its own org
+	 *         identity key (see chaincode_deployment.sh). Consumers trust the
+	 *         publisher's certificate, so a single peer operator cannot issue
+	 *         attestations on its own.
+	 */
+	@Transaction()
+	public ProvenanceAttestation generateProvenanceAttestation(final Context ctx, final String productId) {
+
+		ChaincodeStub stub = ctx.getStub();
+		String AssetState = stub.getStringState(productId);
+
+		if (AssetState.isEmpty()) {
+			String errorMessage = String.format("Product ID %s does not exist", productId);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.ASSET_NOT_FOUND.toString());
+		}
+
+		MangoSupplyChain mangosupplychain = genson.deserialize(AssetState, MangoSupplyChain.class);
+
+		String[][] stageFields = {
+				{ "producer", mangosupplychain.getProducerName(), mangosupplychain.getProducerAddress(),
+						mangosupplychain.getHarvestDate() },
+				{ "distributor", mangosupplychain.getDistributorName(), mangosupplychain.getDistributorAddress(),
+						mangosupplychain.getProdToDistDate() },
+				{ "retailer", mangosupplychain.getRetailerName(), mangosupplychain.getRetailerAddress(),
+						mangosupplychain.getDistToRetaDate() } };
+
+		String[] leaves = new String[stageFields.length];
+		for (int i = 0; i < stageFields.length; i++) {
+			leaves[i] = ProvenanceVerifier.leafHash(stageFields[i][0], stageFields[i][1], stageFields[i][2],
+					stageFields[i][3]);
+		}
+
+		String[][] proofs = ProvenanceVerifier.merkleProofs(leaves);
+		ProvenanceStage[] stages = new ProvenanceStage[stageFields.length];
+		for (int i = 0; i < stageFields.length; i++) {
+			stages[i] = new ProvenanceStage(i, stageFields[i][0], stageFields[i][1], stageFields[i][2],
+					stageFields[i][3], proofs[i]);
+		}
+
+		String recordHash = ProvenanceVerifier.recordHash(productId, mangosupplychain.getProductDescription(),
+				mangosupplychain.getProducerName(), mangosupplychain.getProducerAddress(),
+				mangosupplychain.getHarvestDate(), mangosupplychain.getDistributorName(),
+				mangosupplychain.getDistributorAddress(), mangosupplychain.getProdToDistDate(),
+				mangosupplychain.getRetailerName(), mangosupplychain.getRetailerAddress(),
+				mangosupplychain.getDistToRetaDate());
+		String merkleRoot = ProvenanceVerifier.merkleRoot(leaves);
+		long issuedAt = stub.getTxTimestamp().getEpochSecond();
+
+		return new ProvenanceAttestation(productId, mangosupplychain.getProductDescription(), stages, recordHash,
+				merkleRoot, issuedAt, "");
+	}
+
+	/**
+	 *
+	 * 6. Purge expired client request ids:
+	 *
+	 * This function removes client request ids that are too old to be replayed.
+	 * It deletes at most 500 entries per call and returns how many were deleted.
+	 *
+	 * @param ctx the transaction context
+	 * @return the number of purged request ids
+	 */
+	@Transaction()
+	public int purgeExpiredRequestIds(final Context ctx) {
+		return ClientRequestIndex.purgeExpired(ctx.getStub(), PURGE_BATCH_SIZE);
+	}
+
+	/**
+	 *
+	 * 7. Append cold-chain telemetry to an asset:
+	 *
+	 * This function appends temperature and humidity readings taken between
+	 * harvest and retail. Readings are stored in chunks of 64 next to the asset, so
+	 * an append rewrites only the last chunk and never the mango details.
+	 *
+	 * Input parameters:
+	 *
+	 * @param ctx       the transaction context
+	 * @param productId product ID of the mango
+	 * @param readings  readings as timestamp,temperature,humidity separated by
+	 *                  semicolons, with the timestamp in epoch seconds, for example
+	 *                  1700000000,4.5,85;1700000060,4.6,84.8
+	 * @return the number of readings stored for the asset
+	 *
+	 *         This function does the following checks as well:
+	 *
+	 *         The asset should be present in the ledger. At most 1000 readings
+	 *         are accepted per call and every timestamp should be later than the
+	 *         one before it, including the last stored reading, so a resubmitted
+	 *         batch is rejected instead of stored twice. A call retried with the
+	 *         same requestId in the transient map returns the original count.
+	 */
+	@Transaction()
+	public long appendTelemetry(final Context ctx, final String productId, final String readings) {
+
+		ChaincodeStub stub = ctx.getStub();
+
+		String requestId = ClientRequestIndex.requestId(stub);
+		if (requestId != null) {
+			String previousResult = previousResult(ctx, "appendTelemetry", requestId, productId);
+			if (previousResult != null) {
+				return Long.parseLong(previousResult);
+			}
+		}
+
+		String AssetState = stub.getStringState(productId);
+
+		if (AssetState.isEmpty()) {
+			String errorMessage = String.format("Product ID %s does not exist", productId);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.ASSET_NOT_FOUND.toString());
+		}
+
+		String headKey = stub.createCompositeKey(TELEMETRY_HEAD, productId).toString();
+		String head = stub.getStringState(headKey);
+		long count = head.isEmpty() ? 0 : Long.parseLong(head.substring(0, head.indexOf(':')));
+		long lastTimestamp = head.isEmpty() ? Long.MIN_VALUE : Long.parseLong(head.substring(head.indexOf(':') + 1));
+
+		String[] entries = readings.split(";");
+		if (entries.length > MAX_TELEMETRY_BATCH) {
+			String errorMessage = String.format("Cannot append %d readings at once. The limit is %d",
+					entries.length, MAX_TELEMETRY_BATCH);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+		}
+
+		long[] timestamps = new long[entries.length];
+		long[] temperatures = new long[entries.length];
+		long[] humidities = new long[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			String[] fields = entries[i].split(",");
+			try {
+				if (fields.length != 3) {
+					throw new NumberFormatException();
+				}
+				timestamps[i] = Long.parseLong(fields[0].trim());
+				temperatures[i] = hundredths(fields[1]);
+				humidities[i] = hundredths(fields[2]);
+			} catch (NumberFormatException ex) {
+				String errorMessage = String.format(
+						"Given reading %s is invalid. Please enter it as timestamp,temperature,humidity", entries[i]);
+				System.out.println(errorMessage);
+				throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+			}
+
+			if (timestamps[i] <= lastTimestamp || humidities[i] < 0 || humidities[i] > 10000) {
+				String errorMessage = String.format(
+						"Given reading %s is invalid. Timestamps should be later than the last reading and humidity should be between 0 and 100",
+						entries[i]);
+				System.out.println(errorMessage);
+				throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+			}
+			lastTimestamp = timestamps[i];
+		}
+
+		int appended = 0;
+		while (appended < entries.length) {
+			int inChunk = (int) (count % TelemetryChunk.SIZE);
+			int take = Math.min(TelemetryChunk.SIZE - inChunk, entries.length - appended);
+			String chunkKey = telemetryChunkKey(stub, productId, count / TelemetryChunk.SIZE);
+
+			byte[] chunk = (inChunk == 0) ? new byte[0] : stub.getState(chunkKey);
+			stub.putState(chunkKey,
+					TelemetryChunk.append(chunk, timestamps, temperatures, humidities, appended, appended + take));
+			appended += take;
+			count += take;
+		}
+
+		stub.putStringState(headKey, count + ":" + lastTimestamp);
+		if (requestId != null) {
+			ClientRequestIndex.record(ctx, "appendTelemetry", productId, requestId, String.valueOf(count));
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * 8. Summarize cold-chain telemetry over a time window:
+	 *
+	 * This function returns the number of readings, the minimum and maximum
+	 * temperature and humidity, and how many readings were outside the allowed
+	 * temperature range between two timestamps. Only the chunks that overlap the
+	 * window are read.
+	 *
+	 * Input parameters:
+	 *
+	 * @param ctx            the transaction context
+	 * @param productId      product ID of the mango
+	 * @param fromTime       start of the window in epoch seconds, inclusive
+	 * @param toTime         end of the window in epoch seconds, inclusive
+	 * @param minTemperature lowest allowed temperature
+	 * @param maxTemperature highest allowed temperature
+	 * @return the telemetry summary, with no temperature or humidity bounds when
+	 *         no reading falls in the window
+	 */
+	@Transaction()
+	public TelemetrySummary queryTelemetryWindow(final Context ctx, final String productId, final String fromTime,
+			final String toTime, final String minTemperature, final String maxTemperature) {
+
+		ChaincodeStub stub = ctx.getStub();
+		String AssetState = stub.getStringState(productId);
+
+		if (AssetState.isEmpty()) {
+			String errorMessage = String.format("Product ID %s does not exist", productId);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.ASSET_NOT_FOUND.toString());
+		}
+
+		long from;
+		long to;
+		long minAllowed;
+		long maxAllowed;
+		try {
+			from = Long.parseLong(fromTime.trim());
+			to = Long.parseLong(toTime.trim());
+			minAllowed = hundredths(minTemperature);
+			maxAllowed = hundredths(maxTemperature);
+		} catch (NumberFormatException ex) {
+			String errorMessage = String.format("Given window %s to %s or temperature range %s to %s is invalid",
+					fromTime, toTime, minTemperature, maxTemperature);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+		}
+
+		if (from > to) {
+			String errorMessage = String.format("Window start %s cannot be after window end %s", fromTime, toTime);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+		}
+
+		if (minAllowed > maxAllowed) {
+			String errorMessage = String.format("Minimum temperature %s cannot be above maximum temperature %s",
+					minTemperature, maxTemperature);
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+		}
+
+		String head = stub.getStringState(stub.createCompositeKey(TELEMETRY_HEAD, productId).toString());
+		long count = head.isEmpty() ? 0 : Long.parseLong(head.substring(0, head.indexOf(':')));
+		long chunkCount = (count + TelemetryChunk.SIZE - 1) / TelemetryChunk.SIZE;
+
+		/*
+		 * Timestamps strictly increase across chunks, so every reading in a chunk is
+		 * earlier than the first reading of the next one. The window therefore starts
+		 * in the last chunk whose first reading is not after fromTime.
+		 */
+		long low = 0;
+		long high = chunkCount - 1;
+		while (low < high) {
+			long middle = (low + high + 1) / 2;
+			if (TelemetryChunk.firstTimestamp(stub.getState(telemetryChunkKey(stub, productId, middle))) <= from) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		long[] totals = TelemetryChunk.emptyTotals();
+		for (long chunk = low; chunk < chunkCount; chunk++) {
+			if (!TelemetryChunk.aggregate(stub.getState(telemetryChunkKey(stub, productId, chunk)), from, to,
+					minAllowed, maxAllowed, totals)) {
+				break;
+			}
+		}
+
+		if (totals[TelemetryChunk.COUNT] == 0) {
+			return new TelemetrySummary(productId, from, to, 0, null, null, null, null, 0);
+		}
+		return new TelemetrySummary(productId, from, to, totals[TelemetryChunk.COUNT],
+				totals[TelemetryChunk.MIN_TEMPERATURE] / 100.0, totals[TelemetryChunk.MAX_TEMPERATURE] / 100.0,
+				totals[TelemetryChunk.MIN_HUMIDITY] / 100.0, totals[TelemetryChunk.MAX_HUMIDITY] / 100.0,
+				totals[TelemetryChunk.OUT_OF_RANGE]);
+	}
+
+	private String telemetryChunkKey(final ChaincodeStub stub, final String productId, final long chunk) {
+		return stub.createCompositeKey(TELEMETRY_CHUNK, productId, String.format("%08d", chunk)).toString();
+	}
+
+	/*
+	 * Convert a decimal reading to hundredths of a unit
+	 */
+	private long hundredths(final String value) {
+		double parsed = Double.parseDouble(value.trim());
+		if (Double.isNaN(parsed) || Double.isInfinite(parsed) || Math.abs(parsed) > 1.0e6) {
+			throw new NumberFormatException("Reading out of range: " + value);
+		}
+		return Math.round(parsed * 100);
+	}
+
+	/*
+	 * Result of an earlier call with the same client request id, or null if there was none
+	 */
+	private String previousResult(final Context ctx, final String function, final String requestId,
+			final String productId) {
+		try {
+			return ClientRequestIndex.lookup(ctx, function, productId, requestId);
+		} catch (IllegalArgumentException ex) {
+			String errorMessage = ex.getMessage();
+			System.out.println(errorMessage);
+			throw new ChaincodeException(errorMessage, MSCErrors.INVALID_INPUT.toString());
+		}
+	}
 }
@@ -0,0 +1,109 @@
+package MangoSupplyChain;
+
+import java.util.Arrays;
+import java.util.Objects;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+import com.owlike.genson.annotation.JsonProperty;
+
+@DataType()
+public class ProvenanceAttestation {
+	@Property()
+	private final String productId;
+
+	@Property()
+	private final String productDescription;
+
+	@Property()
+	private final ProvenanceStage[] stages;
+
+	@Property()
+	private final String recordHash;
+
+	@Property()
+	private final String merkleRoot;
+
+	@Property()
+	private final long issuedAt;
+
+	@Property()
+	private final String signature;
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public String getProductDescription() {
+		return productDescription;
+	}
+
+	public ProvenanceStage[] getStages() {
+		return stages.clone();
+	}
+
+	public String getRecordHash() {
+		return recordHash;
+	}
+
+	public String getMerkleRoot() {
+		return merkleRoot;
+	}
+
+	public long getIssuedAt() {
+		return issuedAt;
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public ProvenanceAttestation(@JsonProperty("productId") final String productId,
+			@JsonProperty("productDescription") final String productDescription,
+			@JsonProperty("stages") final ProvenanceStage[] stages,
+			@JsonProperty("recordHash") final String recordHash,
+			@JsonProperty("merkleRoot") final String merkleRoot, @JsonProperty("issuedAt") final long issuedAt,
+			@JsonProperty("signature") final String signature) {
+		this.productId = productId;
+		this.productDescription = productDescription;
+		this.stages = (stages == null) ? new ProvenanceStage[0] : stages.clone();
+		this.recordHash = recordHash;
+		this.merkleRoot = merkleRoot;
+		this.issuedAt = issuedAt;
+		this.signature = signature;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+
+		ProvenanceAttestation other = (ProvenanceAttestation) obj;
+
+		return getIssuedAt() == other.getIssuedAt()
+				&& Objects.deepEquals(
+						new String[] { getProductId(), getProductDescription(), getRecordHash(), getMerkleRoot(),
+								getSignature() },
+						new String[] { other.getProductId(), other.getProductDescription(), other.getRecordHash(),
+								other.getMerkleRoot(), other.getSignature() })
+				&& Arrays.equals(stages, other.stages);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(getProductId(), getProductDescription(), Arrays.hashCode(stages), getRecordHash(),
+				getMerkleRoot(), getIssuedAt(), getSignature());
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [productId=" + productId
+				+ ", productDescription=" + productDescription + ", stages=" + Arrays.toString(stages)
+				+ ", recordHash=" + recordHash + ", merkleRoot=" + merkleRoot + ", issuedAt=" + issuedAt
+				+ ", signature=" + signature + "]";
+	}
+}
@@ -0,0 +1,264 @@
+package MangoSupplyChain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader for attestations, so the verifier needs nothing beyond
+ * the JDK. Objects become maps, arrays become lists, numbers stay as their
+ * text, and nesting is limited because the input comes from an untrusted
+ * cache.
+ */
+final class ProvenanceJson {
+	private static final int MAX_DEPTH = 16;
+
+	private final String json;
+	private int position;
+
+	private ProvenanceJson(final String json) {
+		this.json = json;
+	}
+
+	static Object parse(final String json) {
+		if (json == null) {
+			throw new IllegalArgumentException("Attestation JSON is missing");
+		}
+
+		ProvenanceJson reader = new ProvenanceJson(json);
+		Object value = reader.value(0);
+		reader.skipWhitespace();
+		if (reader.position != json.length()) {
+			throw reader.error("Unexpected text after the attestation");
+		}
+		return value;
+	}
+
+	static ProvenanceAttestation toAttestation(final Object value) {
+		Map<?, ?> fields = (value instanceof Map) ? (Map<?, ?>) value : new LinkedHashMap<String, Object>();
+
+		List<?> stageValues = (fields.get("stages") instanceof List) ? (List<?>) fields.get("stages")
+				: new ArrayList<Object>();
+		ProvenanceStage[] stages = new ProvenanceStage[stageValues.size()];
+		for (int i = 0; i < stages.length; i++) {
+			if (stageValues.get(i) instanceof Map) {
+				stages[i] = toStage((Map<?, ?>) stageValues.get(i));
+			}
+		}
+
+		return new ProvenanceAttestation(string(fields, "productId"), string(fields, "productDescription"), stages,
+				string(fields, "recordHash"), string(fields, "merkleRoot"), number(fields, "issuedAt"),
+				string(fields, "signature"));
+	}
+
+	private static ProvenanceStage toStage(final Map<?, ?> fields) {
+		List<?> proofValues = (fields.get("proof") instanceof List) ? (List<?>) fields.get("proof")
+				: new ArrayList<Object>();
+		String[] proof = new String[proofValues.size()];
+		for (int i = 0; i < proof.length; i++) {
+			proof[i] = (proofValues.get(i) instanceof String) ? (String) proofValues.get(i) : null;
+		}
+
+		long index = number(fields, "index");
+		return new ProvenanceStage((index >= 0 && index <= Integer.MAX_VALUE) ? (int) index : -1,
+				string(fields, "role"), string(fields, "name"), string(fields, "address"), string(fields, "date"),
+				proof);
+	}
+
+	private static String string(final Map<?, ?> fields, final String name) {
+		Object value = fields.get(name);
+		return (value instanceof String) ? (String) value : null;
+	}
+
+	/*
+	 * Whole number field, or -1 if it is missing or not a whole number
+	 */
+	private static long number(final Map<?, ?> fields, final String name) {
+		Object value = fields.get(name);
+		if (value instanceof Number) {
+			try {
+				return Long.parseLong(((Number) value).toString());
+			} catch (NumberFormatException ex) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private Object value(final int depth) {
+		if (depth > MAX_DEPTH) {
+			throw error("Attestation is nested too deeply");
+		}
+
+		skipWhitespace();
+		if (position >= json.length()) {
+			throw error("Unexpected end of the attestation");
+		}
+
+		char c = json.charAt(position);
+		if (c == '{') {
+			return object(depth);
+		}
+		if (c == '[') {
+			return array(depth);
+		}
+		if (c == '"') {
+			return string();
+		}
+		if (json.startsWith("true", position)) {
+			position += 4;
+			return Boolean.TRUE;
+		}
+		if (json.startsWith("false", position)) {
+			position += 5;
+			return Boolean.FALSE;
+		}
+		if (json.startsWith("null", position)) {
+			position += 4;
+			return null;
+		}
+		return number();
+	}
+
+	private Map<String, Object> object(final int depth) {
+		Map<String, Object> fields = new LinkedHashMap<>();
+		position++;
+		skipWhitespace();
+		if (peek() == '}') {
+			position++;
+			return fields;
+		}
+
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw error("Expected a field name");
+			}
+			String name = string();
+			skipWhitespace();
+			expect(':');
+			fields.put(name, value(depth + 1));
+			skipWhitespace();
+			if (peek() == ',') {
+				position++;
+			} else {
+				expect('}');
+				return fields;
+			}
+		}
+	}
+
+	private List<Object> array(final int depth) {
+		List<Object> values = new ArrayList<>();
+		position++;
+		skipWhitespace();
+		if (peek() == ']') {
+			position++;
+			return values;
+		}
+
+		while (true) {
+			values.add(value(depth + 1));
+			skipWhitespace();
+			if (peek() == ',') {
+				position++;
+			} else {
+				expect(']');
+				return values;
+			}
+		}
+	}
+
+	private String string() {
+		StringBuilder value = new StringBuilder();
+		position++;
+		while (true) {
+			if (position >= json.length()) {
+				throw error("Unterminated string");
+			}
+			char c = json.charAt(position++);
+			if (c == '"') {
+				return value.toString();
+			}
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			if (position >= json.length()) {
+				throw error("Unterminated escape");
+			}
+			char escaped = json.charAt(position++);
+			switch (escaped) {
+			case 'b':
+				value.append('\b');
+				break;
+			case 'f':
+				value.append('\f');
+				break;
+			case 'n':
+				value.append('\n');
+				break;
+			case 'r':
+				value.append('\r');
+				break;
+			case 't':
+				value.append('\t');
+				break;
+			case 'u':
+				if (position + 4 > json.length()) {
+					throw error("Invalid unicode escape");
+				}
+				try {
+					value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+				} catch (NumberFormatException ex) {
+					throw error("Invalid unicode escape");
+				}
+				position += 4;
+				break;
+			default:
+				value.append(escaped);
+			}
+		}
+	}
+
+	private Number number() {
+		int start = position;
+		while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+			position++;
+		}
+		String text = json.substring(start, position);
+		try {
+			if (text.matches("-?\\d+")) {
+				return Long.valueOf(text);
+			}
+			return Double.valueOf(text);
+		} catch (NumberFormatException ex) {
+			throw error("Invalid value");
+		}
+	}
+
+	private void skipWhitespace() {
+		while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+			position++;
+		}
+	}
+
+	private char peek() {
+		if (position >= json.length()) {
+			throw error("Unexpected end of the attestation");
+		}
+		return json.charAt(position);
+	}
+
+	private void expect(final char c) {
+		if (peek() != c) {
+			throw error("Expected " + c);
+		}
+		position++;
+	}
+
+	private IllegalArgumentException error(final String message) {
+		return new IllegalArgumentException(message + " at position " + position);
+	}
+}
@@ -0,0 +1,93 @@
+package MangoSupplyChain;
+
+import java.util.Arrays;
+import java.util.Objects;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+import com.owlike.genson.annotation.JsonProperty;
+
+@DataType()
+public class ProvenanceStage {
+	@Property()
+	private final int index;
+
+	@Property()
+	private final String role;
+
+	@Property()
+	private final String name;
+
+	@Property()
+	private final String address;
+
+	@Property()
+	private final String date;
+
+	@Property()
+	private final String[] proof;
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getRole() {
+		return role;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getAddress() {
+		return address;
+	}
+
+	public String getDate() {
+		return date;
+	}
+
+	public String[] getProof() {
+		return proof.clone();
+	}
+
+	public ProvenanceStage(@JsonProperty("index") final int index, @JsonProperty("role") final String role,
+			@JsonProperty("name") final String name, @JsonProperty("address") final String address,
+			@JsonProperty("date") final String date, @JsonProperty("proof") final String[] proof) {
+		this.index = index;
+		this.role = role;
+		this.name = name;
+		this.address = address;
+		this.date = date;
+		this.proof = (proof == null) ? new String[0] : proof.clone();
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+
+		ProvenanceStage other = (ProvenanceStage) obj;
+
+		return getIndex() == other.getIndex()
+				&& Objects.deepEquals(new String[] { getRole(), getName(), getAddress(), getDate() },
+						new String[] { other.getRole(), other.getName(), other.getAddress(), other.getDate() })
+				&& Arrays.equals(proof, other.proof);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(getIndex(), getRole(), getName(), getAddress(), getDate(), Arrays.hashCode(proof));
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [index=" + index
+				+ ", role=" + role + ", name=" + name + ", address=" + address + ", date=" + date + ", proof="
+				+ Arrays.toString(proof) + "]";
+	}
+}
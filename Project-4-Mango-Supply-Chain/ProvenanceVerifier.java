@@ -0,0 +1,293 @@
+package MangoSupplyChain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Offline verifier for the attestations returned by
+ * MangoSupplyChainContract.generateProvenanceAttestation.
+ *
+ * The chaincode only computes the record hash and Merkle root; it holds no
+ * signing key. The publishing org evaluates the attestation on peers of more
+ * than one org, checks that they agree, and signs signingPayload with its own
+ * org identity key (EC or RSA). Consumers pin that org's public key, so an
+ * attestation is only as trusted as the publisher that signed it.
+ *
+ * Only the JDK is needed at runtime, so consumer apps can parse and check an
+ * attestation fetched from a static cache without contacting the peers. The
+ * verifierJar Gradle task packages this class together with the attestation
+ * data types.
+ */
+public final class ProvenanceVerifier {
+
+	private static final byte LEAF_PREFIX = 0x00;
+	private static final byte NODE_PREFIX = 0x01;
+	private static final byte RECORD_PREFIX = 0x02;
+
+	private ProvenanceVerifier() {
+	}
+
+	/**
+	 * Decodes the publisher's public key.
+	 *
+	 * @param encodedKey PEM or base64 X.509 encoding of the EC or RSA public key
+	 * @return the public key
+	 * @throws GeneralSecurityException if the key cannot be decoded
+	 */
+	public static PublicKey decodePublicKey(final String encodedKey) throws GeneralSecurityException {
+		byte[] keyBytes;
+		try {
+			keyBytes = Base64.getMimeDecoder().decode(encodedKey.replaceAll("-----[A-Z ]+-----", ""));
+		} catch (IllegalArgumentException ex) {
+			throw new GeneralSecurityException("Public key is not valid base64", ex);
+		}
+
+		X509EncodedKeySpec keySpec = new X509EncodedKeySpec(keyBytes);
+		try {
+			return KeyFactory.getInstance("EC").generatePublic(keySpec);
+		} catch (InvalidKeySpecException ex) {
+			return KeyFactory.getInstance("RSA").generatePublic(keySpec);
+		}
+	}
+
+	/**
+	 * Parses an attestation from the JSON returned by the chaincode.
+	 *
+	 * @param json the attestation JSON
+	 * @return the attestation, with missing fields left empty
+	 * @throws IllegalArgumentException if the text is not valid JSON
+	 */
+	public static ProvenanceAttestation parse(final String json) {
+		return ProvenanceJson.toAttestation(ProvenanceJson.parse(json));
+	}
+
+	/**
+	 * Parses and checks an attestation fetched as JSON.
+	 *
+	 * @param json      the attestation JSON
+	 * @param publicKey the publisher's public key
+	 * @return true if the JSON is a valid, authentic and consistent attestation
+	 */
+	public static boolean verify(final String json, final PublicKey publicKey) {
+		try {
+			return verify(parse(json), publicKey);
+		} catch (IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Bytes the publisher signs, with SHA256withECDSA or SHA256withRSA.
+	 *
+	 * @param attestation the attestation returned by the chaincode
+	 * @return the product ID, record hash, Merkle root and issue time joined by
+	 *         newlines, in UTF-8
+	 */
+	public static byte[] signingPayload(final ProvenanceAttestation attestation) {
+		return String.join("\n", attestation.getProductId(), attestation.getRecordHash(),
+				attestation.getMerkleRoot(), Long.toString(attestation.getIssuedAt()))
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Checks the signature, the record hash, the Merkle root and every stage
+	 * proof of an attestation. Incomplete or tampered attestations fail the
+	 * check instead of throwing.
+	 *
+	 * @param attestation the attestation to check
+	 * @param publicKey   the publisher's public key
+	 * @return true if the attestation is authentic and internally consistent
+	 */
+	public static boolean verify(final ProvenanceAttestation attestation, final PublicKey publicKey) {
+		if (attestation == null || publicKey == null || attestation.getProductId() == null
+				|| attestation.getRecordHash() == null || attestation.getMerkleRoot() == null
+				|| attestation.getSignature() == null) {
+			return false;
+		}
+
+		ProvenanceStage[] stages = attestation.getStages();
+		if (stages.length == 0) {
+			return false;
+		}
+
+		String[] leaves = new String[stages.length];
+		String[] recordFields = new String[2 + (3 * stages.length)];
+		recordFields[0] = attestation.getProductId();
+		recordFields[1] = attestation.getProductDescription();
+
+		for (int i = 0; i < stages.length; i++) {
+			ProvenanceStage stage = stages[i];
+			if (stage == null || stage.getIndex() != i || !verifyStage(stage, attestation.getMerkleRoot())) {
+				return false;
+			}
+			leaves[i] = leafHash(stage.getRole(), stage.getName(), stage.getAddress(), stage.getDate());
+			recordFields[2 + (3 * i)] = stage.getName();
+			recordFields[3 + (3 * i)] = stage.getAddress();
+			recordFields[4 + (3 * i)] = stage.getDate();
+		}
+
+		if (!merkleRoot(leaves).equals(attestation.getMerkleRoot())
+				|| !recordHash(recordFields).equals(attestation.getRecordHash())) {
+			return false;
+		}
+
+		String algorithm = "EC".equals(publicKey.getAlgorithm()) ? "SHA256withECDSA" : "SHA256withRSA";
+		try {
+			Signature verifier = Signature.getInstance(algorithm);
+			verifier.initVerify(publicKey);
+			verifier.update(signingPayload(attestation));
+			return verifier.verify(Base64.getDecoder().decode(attestation.getSignature()));
+		} catch (GeneralSecurityException | IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks that a single stage belongs to the tree with the given root, so a
+	 * stage can be disclosed on its own.
+	 *
+	 * @param stage      the stage with its Merkle proof
+	 * @param merkleRoot the hex Merkle root from a verified attestation
+	 * @return true if the stage proof leads to the root
+	 */
+	public static boolean verifyStage(final ProvenanceStage stage, final String merkleRoot) {
+		if (stage == null || stage.getIndex() < 0) {
+			return false;
+		}
+
+		byte[] hash = fromHex(leafHash(stage.getRole(), stage.getName(), stage.getAddress(), stage.getDate()));
+		int position = stage.getIndex();
+		for (String sibling : stage.getProof()) {
+			byte[] siblingHash = fromHex(sibling);
+			if (siblingHash == null) {
+				return false;
+			}
+			hash = (position % 2 == 0) ? nodeHash(hash, siblingHash) : nodeHash(siblingHash, hash);
+			position /= 2;
+		}
+		// An index past the leaves the proof covers would otherwise reuse a smaller index's proof
+		return position == 0 && toHex(hash).equals(merkleRoot);
+	}
+
+	static String recordHash(final String... fields) {
+		return toHex(digest(RECORD_PREFIX, fields));
+	}
+
+	static String leafHash(final String role, final String name, final String address, final String date) {
+		return toHex(digest(LEAF_PREFIX, role, name, address, date));
+	}
+
+	static String merkleRoot(final String[] leaves) {
+		List<byte[]> level = new ArrayList<>();
+		for (String leaf : leaves) {
+			level.add(fromHex(leaf));
+		}
+		while (level.size() > 1) {
+			level = nextLevel(level);
+		}
+		return toHex(level.get(0));
+	}
+
+	/*
+	 * Sibling hashes from each leaf up to the root. An odd node at the end of a
+	 * level is paired with itself.
+	 */
+	static String[][] merkleProofs(final String[] leaves) {
+		List<List<String>> proofs = new ArrayList<>();
+		List<byte[]> level = new ArrayList<>();
+		for (String leaf : leaves) {
+			level.add(fromHex(leaf));
+			proofs.add(new ArrayList<>());
+		}
+
+		for (int span = 1; level.size() > 1; span *= 2) {
+			for (int i = 0; i < leaves.length; i++) {
+				int position = i / span;
+				int sibling = Math.min(position ^ 1, level.size() - 1);
+				proofs.get(i).add(toHex(level.get(sibling)));
+			}
+			level = nextLevel(level);
+		}
+
+		String[][] result = new String[leaves.length][];
+		for (int i = 0; i < leaves.length; i++) {
+			result[i] = proofs.get(i).toArray(new String[0]);
+		}
+		return result;
+	}
+
+	private static List<byte[]> nextLevel(final List<byte[]> level) {
+		List<byte[]> next = new ArrayList<>();
+		for (int i = 0; i < level.size(); i += 2) {
+			byte[] left = level.get(i);
+			byte[] right = (i + 1 < level.size()) ? level.get(i + 1) : left;
+			next.add(nodeHash(left, right));
+		}
+		return next;
+	}
+
+	private static byte[] nodeHash(final byte[] left, final byte[] right) {
+		MessageDigest digest = sha256();
+		digest.update(NODE_PREFIX);
+		digest.update(left);
+		digest.update(right);
+		return digest.digest();
+	}
+
+	/*
+	 * Each field is length-prefixed so that no two field lists hash alike.
+	 */
+	private static byte[] digest(final byte prefix, final String... fields) {
+		MessageDigest digest = sha256();
+		digest.update(prefix);
+		for (String field : fields) {
+			byte[] bytes = (field == null ? "" : field).getBytes(StandardCharsets.UTF_8);
+			digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+			digest.update(bytes);
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available", ex);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private static byte[] fromHex(final String hex) {
+		if (hex == null || hex.length() % 2 != 0) {
+			return null;
+		}
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(hex.charAt(2 * i), 16);
+			int low = Character.digit(hex.charAt((2 * i) + 1), 16);
+			if (high < 0 || low < 0) {
+				return null;
+			}
+			bytes[i] = (byte) ((high << 4) | low);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,139 @@
+package MangoSupplyChain;
+
+import java.util.Arrays;
+
+/**
+ * Binary encoding of a fixed-size chunk of cold-chain readings.
+ *
+ * Each reading is a timestamp in epoch seconds, a temperature in hundredths of
+ * a degree and a humidity in hundredths of a percent. The first reading of a
+ * chunk is stored as is and every later one as the difference from the
+ * previous reading, all as zigzag varints, so a chunk of steady readings takes
+ * a few bytes per reading. Readings are aggregated straight from the bytes.
+ */
+final class TelemetryChunk {
+	static final int SIZE = 64;
+
+	static final int COUNT = 0;
+	static final int MIN_TEMPERATURE = 1;
+	static final int MAX_TEMPERATURE = 2;
+	static final int MIN_HUMIDITY = 3;
+	static final int MAX_HUMIDITY = 4;
+	static final int OUT_OF_RANGE = 5;
+
+	private static final int FIELDS = 3;
+	private static final int MAX_VARINT_BYTES = 10;
+
+	private TelemetryChunk() {
+	}
+
+	/*
+	 * Totals array for aggregate, indexed by COUNT, MIN_TEMPERATURE and so on
+	 */
+	static long[] emptyTotals() {
+		return new long[] { 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, 0 };
+	}
+
+	/*
+	 * Append readings from (inclusive) to to (exclusive) to the encoded chunk
+	 */
+	static byte[] append(final byte[] chunk, final long[] timestamps, final long[] temperatures,
+			final long[] humidities, final int from, final int to) {
+		long[] previous = new long[FIELDS];
+		Reader reader = new Reader(chunk);
+		while (reader.hasNext()) {
+			for (int field = 0; field < FIELDS; field++) {
+				previous[field] += reader.next();
+			}
+		}
+
+		byte[] out = Arrays.copyOf(chunk, chunk.length + ((to - from) * FIELDS * MAX_VARINT_BYTES));
+		int position = chunk.length;
+		for (int i = from; i < to; i++) {
+			long[] reading = { timestamps[i], temperatures[i], humidities[i] };
+			for (int field = 0; field < FIELDS; field++) {
+				position = writeVarint(out, position, reading[field] - previous[field]);
+				previous[field] = reading[field];
+			}
+		}
+		return Arrays.copyOf(out, position);
+	}
+
+	/*
+	 * Timestamp of the first reading, which is stored as is
+	 */
+	static long firstTimestamp(final byte[] chunk) {
+		return new Reader(chunk).next();
+	}
+
+	/*
+	 * Add the readings between fromTime and toTime to totals and return false once a
+	 * reading after toTime is reached, since later chunks cannot match either
+	 */
+	static boolean aggregate(final byte[] chunk, final long fromTime, final long toTime, final long minTemperature,
+			final long maxTemperature, final long[] totals) {
+		long timestamp = 0;
+		long temperature = 0;
+		long humidity = 0;
+		Reader reader = new Reader(chunk);
+
+		while (reader.hasNext()) {
+			timestamp += reader.next();
+			temperature += reader.next();
+			humidity += reader.next();
+
+			if (timestamp > toTime) {
+				return false;
+			}
+			if (timestamp < fromTime) {
+				continue;
+			}
+
+			totals[COUNT]++;
+			totals[MIN_TEMPERATURE] = Math.min(totals[MIN_TEMPERATURE], temperature);
+			totals[MAX_TEMPERATURE] = Math.max(totals[MAX_TEMPERATURE], temperature);
+			totals[MIN_HUMIDITY] = Math.min(totals[MIN_HUMIDITY], humidity);
+			totals[MAX_HUMIDITY] = Math.max(totals[MAX_HUMIDITY], humidity);
+			if (temperature < minTemperature || temperature > maxTemperature) {
+				totals[OUT_OF_RANGE]++;
+			}
+		}
+		return true;
+	}
+
+	private static int writeVarint(final byte[] out, final int start, final long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		int position = start;
+		while ((zigzag & ~0x7FL) != 0) {
+			out[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		out[position++] = (byte) zigzag;
+		return position;
+	}
+
+	private static final class Reader {
+		private final byte[] bytes;
+		private int position;
+
+		Reader(final byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		boolean hasNext() {
+			return position < bytes.length;
+		}
+
+		long next() {
+			long zigzag = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				zigzag |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+	}
+}
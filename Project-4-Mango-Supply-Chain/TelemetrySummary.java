@@ -0,0 +1,128 @@
+package MangoSupplyChain;
+
+import java.util.Objects;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+import com.owlike.genson.annotation.JsonProperty;
+
+/*
+ * The temperature and humidity bounds are null when no reading falls in the window
+ */
+@DataType()
+public class TelemetrySummary {
+	@Property()
+	private final String productId;
+
+	@Property()
+	private final long fromTime;
+
+	@Property()
+	private final long toTime;
+
+	@Property()
+	private final long readings;
+
+	@Property()
+	private final Double minTemperature;
+
+	@Property()
+	private final Double maxTemperature;
+
+	@Property()
+	private final Double minHumidity;
+
+	@Property()
+	private final Double maxHumidity;
+
+	@Property()
+	private final long outOfRange;
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public long getFromTime() {
+		return fromTime;
+	}
+
+	public long getToTime() {
+		return toTime;
+	}
+
+	public long getReadings() {
+		return readings;
+	}
+
+	public Double getMinTemperature() {
+		return minTemperature;
+	}
+
+	public Double getMaxTemperature() {
+		return maxTemperature;
+	}
+
+	public Double getMinHumidity() {
+		return minHumidity;
+	}
+
+	public Double getMaxHumidity() {
+		return maxHumidity;
+	}
+
+	public long getOutOfRange() {
+		return outOfRange;
+	}
+
+	public TelemetrySummary(@JsonProperty("productId") final String productId,
+			@JsonProperty("fromTime") final long fromTime, @JsonProperty("toTime") final long toTime,
+			@JsonProperty("readings") final long readings,
+			@JsonProperty("minTemperature") final Double minTemperature,
+			@JsonProperty("maxTemperature") final Double maxTemperature,
+			@JsonProperty("minHumidity") final Double minHumidity,
+			@JsonProperty("maxHumidity") final Double maxHumidity, @JsonProperty("outOfRange") final long outOfRange) {
+		this.productId = productId;
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+		this.readings = readings;
+		this.minTemperature = minTemperature;
+		this.maxTemperature = maxTemperature;
+		this.minHumidity = minHumidity;
+		this.maxHumidity = maxHumidity;
+		this.outOfRange = outOfRange;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if ((obj == null) || (getClass() != obj.getClass())) {
+			return false;
+		}
+
+		TelemetrySummary other = (TelemetrySummary) obj;
+
+		return Objects.equals(getProductId(), other.getProductId()) && getFromTime() == other.getFromTime()
+				&& getToTime() == other.getToTime() && getReadings() == other.getReadings()
+				&& Objects.equals(getMinTemperature(), other.getMinTemperature())
+				&& Objects.equals(getMaxTemperature(), other.getMaxTemperature())
+				&& Objects.equals(getMinHumidity(), other.getMinHumidity())
+				&& Objects.equals(getMaxHumidity(), other.getMaxHumidity())
+				&& getOutOfRange() == other.getOutOfRange();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(getProductId(), getFromTime(), getToTime(), getReadings(), getMinTemperature(),
+				getMaxTemperature(), getMinHumidity(), getMaxHumidity(), getOutOfRange());
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " [productId=" + productId
+				+ ", fromTime=" + fromTime + ", toTime=" + toTime + ", readings=" + readings + ", minTemperature="
+				+ minTemperature + ", maxTemperature=" + maxTemperature + ", minHumidity=" + minHumidity
+				+ ", maxHumidity=" + maxHumidity + ", outOfRange=" + outOfRange + "]";
+	}
+}
@@ -7,6 +7,15 @@ echo "---------------------------------------------------------------"
 export FABRIC_HOME=$HOME/fabric-samples/chaincode
 export CHAINCODE_NAME=MangoSupplyChain
 export CHAINCODE_FOLDER=$HOME/Eclipse
+## CHAINCODE_MODE=service runs the chaincode from the image built by the Dockerfile, which
+## starts the JVM with the class-data-sharing archive. The peer's Java builder starts the JVM
+## itself and takes no JVM options, so the default java mode runs without the archive.
+## Service mode needs external_builder mounted in both peers at EXTERNAL_BUILDER_PATH and
+## listed under chaincode.externalBuilders in their core.yaml; the Fabric 2.2 test network
+## has no external builder configured out of the box.
+export CHAINCODE_MODE=${CHAINCODE_MODE:-java}
+export SERVICE_NAME=mangosupplychain-service
+export EXTERNAL_BUILDER_PATH=/opt/hyperledger/chaincode_service_builder
 export CHANNEL_NAME=mscchannel
 if [[ -d "$FABRIC_HOME" ]] && [[ -d "$CHAINCODE_FOLDER" ]]; then
   ### Take action if $FABRIC_HOME and $CHAINCODE_FOLDER doesn't exists ###
@@ -50,6 +59,7 @@ cd $HOME/fabric-samples/test-network
 echo "---------------------------------------------------------------"
 echo "- Stop the previously running test network"
 echo "---------------------------------------------------------------"
+sudo docker rm -f $SERVICE_NAME > /dev/null 2>&1
 sudo ./network.sh down
 echo "---------------------------------------------------------------"
 echo "- Remove the unused docker images"
@@ -76,7 +86,23 @@ ls
 echo "---------------------------------------------------------------"
 echo "- Packaging chaincode"
 echo "---------------------------------------------------------------"
-peer lifecycle chaincode package $CHAINCODE_NAME.tar.gz --path ../chaincode/$CHAINCODE_NAME/build/install/$CHAINCODE_NAME --lang java --label $CHAINCODE_NAME-1
+if [[ "$CHAINCODE_MODE" == "service" ]]; then
+  for PEER in peer0.org1.example.com peer0.org2.example.com; do
+    if ! docker exec $PEER test -x $EXTERNAL_BUILDER_PATH/bin/detect; then
+      echo "Error: $PEER has no external builder at $EXTERNAL_BUILDER_PATH. Can not continue in service mode."
+      exit 1
+    fi
+  done
+  (cd "$CHAINCODE_FOLDER"/$CHAINCODE_NAME && ./gradlew chaincodeServiceImage)
+  docker build -t $SERVICE_NAME "$CHAINCODE_FOLDER"/$CHAINCODE_NAME/build/chaincode-service
+  rm -rf service-package && mkdir service-package
+  echo "{\"address\":\"$SERVICE_NAME:9999\",\"dial_timeout\":\"10s\",\"tls_required\":false}" > service-package/connection.json
+  echo "{\"type\":\"external\",\"label\":\"$CHAINCODE_NAME-1\"}" > service-package/metadata.json
+  tar -czf service-package/code.tar.gz -C service-package connection.json
+  tar -czf $CHAINCODE_NAME.tar.gz -C service-package metadata.json code.tar.gz
+else
+  peer lifecycle chaincode package $CHAINCODE_NAME.tar.gz --path ../chaincode/$CHAINCODE_NAME/build/install/$CHAINCODE_NAME --lang java --label $CHAINCODE_NAME-1
+fi
 ls
 echo "=================================================================================================="
 
@@ -115,6 +141,13 @@ peer lifecycle chaincode queryinstalled --peerAddresses localhost:9051 --tlsRoot
 export org2_pkgid=$(echo `peer lifecycle chaincode queryinstalled --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE| tail -1 | awk -F' ' '{print $3}' | sed -e s/,//`)
 echo $org2_pkgid
 echo "---------------------------------------------------------------"
+if [[ "$CHAINCODE_MODE" == "service" ]]; then
+  echo "- Starting the chaincode service for package $org1_pkgid"
+  echo "---------------------------------------------------------------"
+  PEER_NETWORK=$(docker inspect peer0.org1.example.com --format '{{range $name, $config := .NetworkSettings.Networks}}{{$name}}{{end}}')
+  docker run -d --name $SERVICE_NAME --network $PEER_NETWORK -e CORE_CHAINCODE_ID_NAME=$org1_pkgid $SERVICE_NAME
+  echo "---------------------------------------------------------------"
+fi
 #4. Downloading the installed chaincode from the Org1
 echo "#4. Downloading the installed chaincode from the Org1"
 echo "---------------------------------------------------------------"
@@ -249,5 +282,35 @@ echo "## View Asset details with invalid product id"
 echo "---------------------------------------------------------------"
 peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 -c '{"Args":["viewAssetDetails", "pr2"]}'
 echo "---------------------------------------------------------------"
+sleep 2
+## Generate and sign a provenance attestation for consumers
+echo "## Generate and sign a provenance attestation for consumers"
+echo "---------------------------------------------------------------"
+bash "$CHAINCODE_FOLDER"/$CHAINCODE_NAME/sign_attestation.sh pr1
+echo "---------------------------------------------------------------"
+sleep 2
+## Add a new asset with a client request id
+echo "## Add a new asset with a client request id"
+echo "---------------------------------------------------------------"
+peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 --transient "{\"requestId\":\"$(echo -n req-1 | base64)\"}" -c '{"Args":["addNewAsset", "pr3", "Mango Product 3","Producer3", "Chennai","10/01/2022"]}'
+echo "---------------------------------------------------------------"
+sleep 2
+## Retry the same request which returns the original result
+echo "## Retry the same request which returns the original result"
+echo "---------------------------------------------------------------"
+peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 --transient "{\"requestId\":\"$(echo -n req-1 | base64)\"}" -c '{"Args":["addNewAsset", "pr3", "Mango Product 3","Producer3", "Chennai","10/01/2022"]}'
+echo "---------------------------------------------------------------"
+sleep 2
+## Append cold-chain telemetry readings
+echo "## Append cold-chain telemetry readings"
+echo "---------------------------------------------------------------"
+peer chaincode invoke -o localhost:7050 --ordererTLSHostnameOverride orderer.example.com --tls $CORE_PEER_TLS_ENABLED --cafile $ORDERER_CA -C $CHANNEL_NAME -n $CHAINCODE_NAME --peerAddresses localhost:7051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG1 --peerAddresses localhost:9051 --tlsRootCertFiles $CORE_PEER_TLS_ROOTCERT_FILE_ORG2 --transient "{\"requestId\":\"$(echo -n telemetry-1 | base64)\"}" -c '{"Args":["appendTelemetry", "pr1", "1700000000,4.5,85;1700000060,4.6,84.8;1700000120,9.1,83.2"]}'
+echo "---------------------------------------------------------------"
+sleep 2
+## Summarize telemetry readings between 2 and 8 degrees
+echo "## Summarize telemetry readings between 2 and 8 degrees"
+echo "---------------------------------------------------------------"
+peer chaincode query -C $CHANNEL_NAME -n $CHAINCODE_NAME -c '{"Args":["queryTelemetryWindow", "pr1", "1700000000","1700000120","2","8"]}'
+echo "---------------------------------------------------------------"
 echo "End of chaincode program executions"
 echo "=================================================================================================="
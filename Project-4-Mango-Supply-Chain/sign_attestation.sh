@@ -0,0 +1,45 @@
+#!/bin/bash
+## Generates and signs a provenance attestation for one product.
+## Usage: sign_attestation.sh PRODUCT_ID
+## The peers hold no signing key: the attestation is evaluated on both orgs, compared,
+## and signed by Org1 with its own admin identity key. Consumers pin Org1's public key,
+## which is written next to the attestation.
+## Run after chaincode_deployment.sh has deployed the chaincode.
+export CHAINCODE_NAME=${CHAINCODE_NAME:-MangoSupplyChain}
+export CHANNEL_NAME=${CHANNEL_NAME:-mscchannel}
+export ATTESTATION_DIR=${ATTESTATION_DIR:-$HOME/fabric-samples/attestations}
+export ORG1_ADMIN_MSP=${ORG1_ADMIN_MSP:-$HOME/fabric-samples/test-network/organizations/peerOrganizations/org1.example.com/users/Admin@org1.example.com/msp}
+PRODUCT_ID=$1
+if [[ ! "$PRODUCT_ID" =~ ^[A-Za-z0-9._-]+$ ]]; then
+  echo "Usage: $0 PRODUCT_ID (letters, digits, dots, dashes and underscores)"
+  exit 1
+fi
+if ! command -v jq > /dev/null || ! command -v openssl > /dev/null; then
+  echo "Error: jq and openssl are required. Can not continue."
+  exit 1
+fi
+ARGS=$(jq -cn --arg productId "$PRODUCT_ID" '{Args: ["generateProvenanceAttestation", $productId]}')
+cd $HOME/fabric-samples/test-network
+mkdir -p "$ATTESTATION_DIR"
+source ./lifecycle_setup_org2.sh
+ORG2_ATTESTATION=$(peer chaincode query -C $CHANNEL_NAME -n $CHAINCODE_NAME -c "$ARGS")
+source ./lifecycle_setup_org1.sh
+ORG1_ATTESTATION=$(peer chaincode query -C $CHANNEL_NAME -n $CHAINCODE_NAME -c "$ARGS")
+if [[ -z "$ORG1_ATTESTATION" ]] || [[ -z "$ORG2_ATTESTATION" ]]; then
+  echo "Error: no attestation for $PRODUCT_ID from the Org1 and Org2 peers. Not signing."
+  exit 1
+fi
+if [[ "$(echo "$ORG1_ATTESTATION" | jq -c '{productId, recordHash, merkleRoot}')" != "$(echo "$ORG2_ATTESTATION" | jq -c '{productId, recordHash, merkleRoot}')" ]]; then
+  echo "Error: Org1 and Org2 peers returned different attestations for $PRODUCT_ID. Not signing."
+  exit 1
+fi
+## The signed payload matches ProvenanceVerifier.signingPayload
+SIGNATURE=$(echo "$ORG1_ATTESTATION" | jq -j '[.productId, .recordHash, .merkleRoot, (.issuedAt | tostring)] | join("\n")' | openssl dgst -sha256 -sign "$(ls "$ORG1_ADMIN_MSP"/keystore/* | head -1)" | base64 -w0)
+if [[ -z "$SIGNATURE" ]]; then
+  echo "Error: signing with the key in $ORG1_ADMIN_MSP/keystore failed."
+  exit 1
+fi
+echo "$ORG1_ATTESTATION" | jq --arg signature "$SIGNATURE" '.signature = $signature' > "$ATTESTATION_DIR/$PRODUCT_ID.json"
+openssl x509 -in "$(ls "$ORG1_ADMIN_MSP"/signcerts/*.pem | head -1)" -pubkey -noout > "$ATTESTATION_DIR/org1-attestation-key.pem"
+echo "Signed attestation written to $ATTESTATION_DIR/$PRODUCT_ID.json"
+cat "$ATTESTATION_DIR/$PRODUCT_ID.json"
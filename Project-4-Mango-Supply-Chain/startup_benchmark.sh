@@ -0,0 +1,61 @@
+#!/bin/bash
+## Measures the chaincode cold start as the time from starting the stopped chaincode
+## container until the first transaction is answered by the peer.
+## Run after chaincode_deployment.sh has deployed and initialized the chaincode. In
+## service mode set CHAINCODE_CONTAINER=mangosupplychain-service to measure the service image.
+echo "---------------------------------------------------------------"
+echo "Setting up environment variables"
+echo "---------------------------------------------------------------"
+export CHAINCODE_NAME=MangoSupplyChain
+export CHANNEL_NAME=mscchannel
+export RUNS=${RUNS:-5}
+export TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-120}
+PROBE='{"Args":["viewAssetDetails", "pr1"]}'
+cd $HOME/fabric-samples/test-network
+source ./lifecycle_setup_org1.sh
+CONTAINER=${CHAINCODE_CONTAINER:-$(docker ps --format '{{.Names}}' | grep "dev-peer0.org1.example.com-$CHAINCODE_NAME" | head -1)}
+if [[ -z "$CONTAINER" ]]; then
+  echo "Error: chaincode container for $CHAINCODE_NAME not found. Can not continue."
+  exit 1
+fi
+echo "---------------------------------------------------------------"
+echo "## Warm query time for $CONTAINER ($RUNS runs)"
+echo "---------------------------------------------------------------"
+## Each probe pays for starting the peer CLI and its TLS handshake. Timing the same
+## query against the running chaincode gives that cost, which is subtracted below.
+BASELINE_TOTAL=0
+for RUN in $(seq 1 $RUNS); do
+  START=$(date +%s%N)
+  if ! peer chaincode query -C $CHANNEL_NAME -n $CHAINCODE_NAME -c "$PROBE" > /dev/null 2>&1; then
+    echo "Error: the probe query failed against the running chaincode. Check that the ledger was initialized."
+    exit 1
+  fi
+  BASELINE_TOTAL=$(( BASELINE_TOTAL + ($(date +%s%N) - START) / 1000000 ))
+done
+BASELINE=$(( BASELINE_TOTAL / RUNS ))
+echo "Warm query: $BASELINE ms"
+echo "---------------------------------------------------------------"
+echo "## Time to first transaction for $CONTAINER ($RUNS runs)"
+echo "---------------------------------------------------------------"
+TOTAL=0
+for RUN in $(seq 1 $RUNS); do
+  docker stop "$CONTAINER" > /dev/null
+  START=$(date +%s%N)
+  DEADLINE=$(( $(date +%s) + TIMEOUT_SECONDS ))
+  docker start "$CONTAINER" > /dev/null
+  until peer chaincode query -C $CHANNEL_NAME -n $CHAINCODE_NAME -c "$PROBE" > /dev/null 2>&1; do
+    if [[ $(date +%s) -ge $DEADLINE ]]; then
+      echo "Error: no successful query within $TIMEOUT_SECONDS seconds on run $RUN. Check that the chaincode started and the ledger was initialized."
+      exit 1
+    fi
+    sleep 0.05
+  done
+  ELAPSED=$(( ($(date +%s%N) - START) / 1000000 ))
+  TOTAL=$(( TOTAL + ELAPSED ))
+  echo "Run $RUN: $ELAPSED ms, $(( ELAPSED - BASELINE )) ms over a warm query"
+done
+AVERAGE=$(( TOTAL / RUNS ))
+echo "---------------------------------------------------------------"
+echo "Average: $AVERAGE ms, $(( AVERAGE - BASELINE )) ms over a warm query"
+echo "Resolution: a result can be late by one failed probe plus the 50 ms pause between probes"
+echo "=================================================================================================="